@@ -0,0 +1,184 @@
+/*
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+package com.github.dcevm;
+
+import sun.management.counter.Counter;
+import sun.management.counter.perf.PerfInstrumentation;
+import sun.misc.Perf;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.security.AccessController;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Publishes the "sun.rt.dcevm.*" performance counters of the VM as MBean. The counters are created by the first
+ * redefinition, all values are zero before.
+ */
+public class RedefinitionMonitor implements RedefinitionMonitorMXBean {
+
+  public static final String OBJECT_NAME = "com.github.dcevm:type=Redefinition";
+
+  private static final String PREFIX = "sun.rt.dcevm.";
+  private static final String[] PHASES = {
+          "prologue", "classLoading", "classLinking", "prepareRedefinition", "heapIteration", "redefinition", "epilogue"
+  };
+  private static final String[] PAUSE_BUCKETS = {"1ms", "10ms", "100ms", "1s", "longer"};
+
+  private final PerfInstrumentation instrumentation;
+  private final long frequency;
+
+  public RedefinitionMonitor() {
+    Perf perf = AccessController.doPrivileged(new Perf.GetPerfAction());
+    try {
+      instrumentation = new PerfInstrumentation(perf.attach(0, "r"));
+    } catch (IOException e) {
+      throw new IllegalStateException("Performance counters are not available (-XX:-UsePerfData?)", e);
+    }
+    frequency = perf.highResFrequency();
+  }
+
+  /**
+   * Registers the monitor with the platform MBean server, unless it is registered already.
+   */
+  public static ObjectName register() throws JMException {
+    ObjectName name = new ObjectName(OBJECT_NAME);
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    if (!server.isRegistered(name)) {
+      server.registerMBean(new RedefinitionMonitor(), name);
+    }
+    return name;
+  }
+
+  @Override
+  public long getRedefinitionCount() {
+    return counter("redefinitions");
+  }
+
+  @Override
+  public long getAffectedClassCount() {
+    return counter("affectedClasses");
+  }
+
+  @Override
+  public long getVisitedClassCount() {
+    return counter("visitedClasses");
+  }
+
+  @Override
+  public long getDeoptimizedMethodCount() {
+    return counter("deoptimizedMethods");
+  }
+
+  @Override
+  public long getMigratedInstanceCount() {
+    return counter("migratedInstances");
+  }
+
+  @Override
+  public long getReferenceUpdateCount() {
+    return counter("referenceUpdates");
+  }
+
+  @Override
+  public long getCancelledRedefinitionCount() {
+    return counter("cancelledRedefinitions");
+  }
+
+  @Override
+  public long getLastPauseEstimateMillis() {
+    return millis(counter("lastPauseEstimate"));
+  }
+
+  @Override
+  public long getPreservedMethodCounterCount() {
+    return counter("preservedMethodCounters");
+  }
+
+  @Override
+  public long getRecompiledMethodCount() {
+    return counter("recompiledMethods");
+  }
+
+  @Override
+  public long getReclaimedVersionCount() {
+    return counter("reclaimedVersions");
+  }
+
+  @Override
+  public long getReclaimedBytes() {
+    return counter("reclaimedBytes");
+  }
+
+  @Override
+  public long getTotalPauseMillis() {
+    return millis(counter("pauseTime"));
+  }
+
+  @Override
+  public long getLastPauseMillis() {
+    return millis(counter("lastPauseTime"));
+  }
+
+  @Override
+  public long getMaxPauseMillis() {
+    return millis(counter("maxPauseTime"));
+  }
+
+  @Override
+  public Map<String, Long> getPhaseTimesMillis() {
+    Map<String, Long> times = new LinkedHashMap<String, Long>();
+    for (String phase : PHASES) {
+      times.put(phase, millis(counter(phase + "Time")));
+    }
+    return times;
+  }
+
+  @Override
+  public Map<String, Long> getPauseHistogram() {
+    Map<String, Long> histogram = new LinkedHashMap<String, Long>();
+    for (String bucket : PAUSE_BUCKETS) {
+      histogram.put(bucket, counter("pauses." + bucket));
+    }
+    return histogram;
+  }
+
+  private long millis(long ticks) {
+    return ticks * 1000 / frequency;
+  }
+
+  private synchronized long counter(String name) {
+    List<Counter> counters = instrumentation.findByPattern(Pattern.quote(PREFIX + name) + "$");
+    if (counters.isEmpty()) {
+      return 0;
+    }
+    return ((Number) counters.get(0).getValue()).longValue();
+  }
+}
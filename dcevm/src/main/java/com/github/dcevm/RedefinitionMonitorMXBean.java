@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+package com.github.dcevm;
+
+import java.util.Map;
+
+/**
+ * Statistics of the enhanced class redefinitions of this VM, registered as {@link RedefinitionMonitor#OBJECT_NAME}.
+ * Counts and times are cumulative over all successful redefinitions.
+ */
+public interface RedefinitionMonitorMXBean {
+
+  long getRedefinitionCount();
+
+  /**
+   * Number of redefined classes, including the subclasses that had to be reloaded.
+   */
+  long getAffectedClassCount();
+
+  /**
+   * Number of classes checked while searching the affected classes. Only the subclasses and implementors of the
+   * redefined classes are checked.
+   */
+  long getVisitedClassCount();
+
+  long getDeoptimizedMethodCount();
+
+  /**
+   * Number of instances whose fields were copied to the layout of the new class version.
+   */
+  long getMigratedInstanceCount();
+
+  /**
+   * Number of redefinitions that updated all references in the heap. Redefinitions in place
+   * (-XX:+HotswapRedefineInPlace) do not walk the heap, with adopted mirrors (-XX:+HotswapPreserveMirrors) only the
+   * klass pointers of the instances are updated.
+   */
+  long getReferenceUpdateCount();
+
+  /**
+   * Number of redefinitions cancelled before their pause because it was estimated to exceed
+   * -XX:HotswapMaxPauseMillis. The estimate is only checked before the classes are changed. A cancelled redefinition
+   * fails with JVMTI_ERROR_INTERRUPT, which java.lang.instrument reports as {@link InternalError} and JDI as
+   * {@code com.sun.jdi.InternalException} with error code 52. {@link #getLastPauseEstimateMillis()} tells the
+   * estimate that exceeded the budget.
+   */
+  long getCancelledRedefinitionCount();
+
+  /**
+   * Pause estimated for the last redefinition checked against -XX:HotswapMaxPauseMillis.
+   */
+  long getLastPauseEstimateMillis();
+
+  /**
+   * Number of unchanged methods that continued with the invocation and backedge counters of their old version
+   * (-XX:+HotswapPreserveMethodCounters).
+   */
+  long getPreservedMethodCounterCount();
+
+  /**
+   * Number of methods whose discarded code was queued for compilation again (-XX:HotswapRecompileHotMethods).
+   */
+  long getRecompiledMethodCount();
+
+  /**
+   * Number of old class versions that were freed (-XX:+HotswapReclaimOldVersions). A version is freed by the first
+   * redefinition after a class unloading cleaned the links to it.
+   */
+  long getReclaimedVersionCount();
+
+  /**
+   * Metadata of the freed old class versions, in bytes: the classes with their methods, constant pools and fields.
+   */
+  long getReclaimedBytes();
+
+  long getTotalPauseMillis();
+
+  long getLastPauseMillis();
+
+  long getMaxPauseMillis();
+
+  /**
+   * Time spent in each phase of the redefinition, by phase name.
+   */
+  Map<String, Long> getPhaseTimesMillis();
+
+  /**
+   * Number of pauses shorter than 1ms, 10ms, 100ms, 1s and longer ones.
+   */
+  Map<String, Long> getPauseHistogram();
+}
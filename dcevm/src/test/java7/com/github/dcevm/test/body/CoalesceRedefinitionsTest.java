@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+package com.github.dcevm.test.body;
+
+import com.github.dcevm.HotSwapTool;
+import com.github.dcevm.test.util.VMOptionRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.concurrent.CyclicBarrier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests -XX:+HotswapCoalesceRedefinitions. Redefinitions requested by several threads at the same time are merged
+ * into one, but every caller must still see the outcome of its own request.
+ */
+public class CoalesceRedefinitionsTest {
+
+  @Rule
+  public VMOptionRule coalesceRedefinitions = new VMOptionRule("HotswapCoalesceRedefinitions", "true");
+
+  public static class Same {
+
+    // Version 0
+    public static class A {
+
+      public int value() {
+        return 0;
+      }
+
+      public int tenfold() {
+        return 0;
+      }
+    }
+
+    // Version 1
+    public static class A___1 {
+
+      public int value() {
+        return 1;
+      }
+
+      public int tenfold() {
+        return 10;
+      }
+    }
+
+    // Version 2
+    public static class A___2 {
+
+      public int value() {
+        return 2;
+      }
+
+      public int tenfold() {
+        return 20;
+      }
+    }
+  }
+
+  public static class First {
+
+    // Version 0
+    public static class A {
+
+      public int value() {
+        return 1;
+      }
+    }
+
+    // Version 1
+    public static class A___1 {
+
+      public int value() {
+        return 11;
+      }
+    }
+
+    public static class Super {
+    }
+
+    // Version 0
+    public static class B extends Super {
+    }
+
+    // Version 2
+    public static class B___2 {
+    }
+  }
+
+  public static class Second {
+
+    // Version 0
+    public static class A {
+
+      public int value() {
+        return 2;
+      }
+    }
+
+    // Version 1
+    public static class A___1 {
+
+      public int value() {
+        return 22;
+      }
+    }
+
+    public static class Super {
+    }
+
+    // Version 0
+    public static class B extends Super {
+    }
+
+    // Version 2
+    public static class B___2 {
+    }
+  }
+
+  /**
+   * Redefines the inner classes of the given outer classes to the given versions, one thread per outer class, all
+   * threads start at the same time. Returns what each thread has thrown.
+   */
+  private static Throwable[] redefineConcurrently(final Class<?>[] outerClasses, final int[] versions) throws Exception {
+    final CyclicBarrier barrier = new CyclicBarrier(outerClasses.length);
+    final Throwable[] thrown = new Throwable[outerClasses.length];
+    Thread[] threads = new Thread[outerClasses.length];
+    for (int i = 0; i < threads.length; i++) {
+      final int index = i;
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            barrier.await();
+            HotSwapTool.toVersion(outerClasses[index], versions[index]);
+          } catch (Throwable t) {
+            thrown[index] = t;
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    return thrown;
+  }
+
+  @Test
+  public void testSameClassLastRedefinitionWins() throws Exception {
+
+    Same.A a = new Same.A();
+    assertEquals(0, a.value());
+
+    Throwable[] thrown = redefineConcurrently(new Class<?>[]{Same.class, Same.class}, new int[]{1, 2});
+    assertEquals(null, thrown[0]);
+    assertEquals(null, thrown[1]);
+
+    // Both requests were applied one after the other, the class has all methods of the one applied last
+    int version = a.value();
+    assertTrue("Version is " + version, version == 1 || version == 2);
+    assertEquals(10 * version, a.tenfold());
+
+    HotSwapTool.toVersion(Same.class, 0);
+    assertEquals(0, a.value());
+    assertEquals(0, a.tenfold());
+  }
+
+  @Test
+  public void testDifferentClassesAreRedefined() throws Exception {
+
+    First.A first = new First.A();
+    Second.A second = new Second.A();
+
+    Throwable[] thrown = redefineConcurrently(new Class<?>[]{First.class, Second.class}, new int[]{1, 1});
+    assertEquals(null, thrown[0]);
+    assertEquals(null, thrown[1]);
+    assertEquals(11, first.value());
+    assertEquals(22, second.value());
+
+    HotSwapTool.toVersion(First.class, 0);
+    HotSwapTool.toVersion(Second.class, 0);
+    assertEquals(1, first.value());
+    assertEquals(2, second.value());
+  }
+
+  @Test
+  public void testFailureIsReportedToEachCaller() throws Exception {
+
+    First.B first = new First.B();
+    Second.B second = new Second.B();
+
+    // Removing a superclass is not supported, whether the requests were merged or not
+    Throwable[] thrown = redefineConcurrently(new Class<?>[]{First.class, Second.class}, new int[]{2, 2});
+    assertTrue("First caller got " + thrown[0], thrown[0] instanceof UnsupportedOperationException);
+    assertTrue("Second caller got " + thrown[1], thrown[1] instanceof UnsupportedOperationException);
+
+    assertEquals(0, HotSwapTool.getCurrentVersion(First.class));
+    assertEquals(0, HotSwapTool.getCurrentVersion(Second.class));
+    assertTrue(first instanceof First.Super);
+    assertTrue(second instanceof Second.Super);
+  }
+}
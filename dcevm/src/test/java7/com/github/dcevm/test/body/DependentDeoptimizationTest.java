@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.github.dcevm.test.body;
+
+import com.github.dcevm.RedefinitionMonitor;
+import com.github.dcevm.RedefinitionMonitorMXBean;
+import com.github.dcevm.test.util.VMOptionRule;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static com.github.dcevm.test.util.HotSwapTestHelper.__toVersion__;
+import static com.github.dcevm.test.util.HotSwapTestHelper.__version__;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Stress test for -XX:+HotswapDeoptDependentsOnly. Compiled methods that inline a redefined method must see the
+ * new body, compiled methods that do not depend on the redefined classes keep running their compiled code.
+ */
+public class DependentDeoptimizationTest {
+
+  public final static int COUNT = 20;
+  public final static int WARMUP = 20000;
+
+  @Rule
+  public VMOptionRule deoptDependentsOnly = new VMOptionRule("HotswapDeoptDependentsOnly", "true");
+
+  private RedefinitionMonitorMXBean monitor;
+
+  // Version 0
+  public static class A {
+
+    public static int value() {
+      return 1;
+    }
+  }
+
+  // Version 1
+  public static class A___1 {
+
+    public static int value() {
+      return 2;
+    }
+  }
+
+  public static class Caller {
+
+    public static int sum(int n) {
+      int sum = 0;
+      for (int i = 0; i < n; i++) {
+        sum += A.value();
+      }
+      return sum;
+    }
+  }
+
+  public static class Unrelated {
+
+    public static int hash(int n) {
+      int hash = 0;
+      for (int i = 0; i < n; i++) {
+        hash = 31 * hash + i;
+      }
+      return hash;
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    __toVersion__(0);
+    monitor = new RedefinitionMonitor();
+  }
+
+  private void warmUp(int expectedSum, int expectedHash) {
+    for (int i = 0; i < WARMUP; i++) {
+      assertEquals(expectedSum, Caller.sum(100));
+      assertEquals(expectedHash, Unrelated.hash(WARMUP));
+    }
+  }
+
+  @Test
+  public void testOnlyDependentsDeoptimized() {
+
+    assert __version__() == 0;
+
+    int expectedHash = Unrelated.hash(WARMUP);
+    warmUp(100, expectedHash);
+
+    long deoptimized = monitor.getDeoptimizedMethodCount();
+    __toVersion__(1);
+    long dependents = monitor.getDeoptimizedMethodCount() - deoptimized;
+    assertEquals(200, Caller.sum(100));
+
+    // Same redefinition with everything compiled again, deoptimizing all compiled methods
+    warmUp(200, expectedHash);
+    deoptDependentsOnly.set("false");
+    deoptimized = monitor.getDeoptimizedMethodCount();
+    __toVersion__(0);
+    long all = monitor.getDeoptimizedMethodCount() - deoptimized;
+    assertEquals(100, Caller.sum(100));
+
+    assertTrue("Caller inlines A.value() and must be deoptimized", dependents > 0);
+    assertTrue("Deoptimized " + dependents + " methods, as many as without the flag (" + all + ")", dependents < all);
+  }
+
+  @Test
+  public void testStressSwapWithCompiledCode() {
+
+    assert __version__() == 0;
+
+    int expectedHash = Unrelated.hash(WARMUP);
+    warmUp(100, expectedHash);
+
+    for (int i = 0; i < COUNT; i++) {
+
+      __toVersion__(1);
+
+      assertEquals(200, Caller.sum(100));
+      assertEquals(expectedHash, Unrelated.hash(WARMUP));
+
+      __toVersion__(0);
+
+      assertEquals(100, Caller.sum(100));
+      assertEquals(expectedHash, Unrelated.hash(WARMUP));
+    }
+  }
+}
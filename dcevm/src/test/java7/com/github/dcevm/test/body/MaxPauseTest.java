@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+package com.github.dcevm.test.body;
+
+import com.github.dcevm.test.util.VMOptionRule;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static com.github.dcevm.test.util.HotSwapTestHelper.__toVersion__;
+import static com.github.dcevm.test.util.HotSwapTestHelper.__version__;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests -XX:HotswapMaxPauseMillis. A redefinition whose pause is estimated to exceed the budget is cancelled
+ * before the safepoint with JVMTI_ERROR_INTERRUPT and leaves the classes unchanged.
+ */
+public class MaxPauseTest {
+
+  @Rule
+  public VMOptionRule maxPause = new VMOptionRule("HotswapMaxPauseMillis", "0");
+
+  // A redefinition in place walks no heap and always fits the budget
+  @Rule
+  public VMOptionRule redefineInPlace = new VMOptionRule("HotswapRedefineInPlace", "false");
+
+  // Version 0
+  public static class A {
+    public int x = 1;
+
+    public int value() {
+      return x;
+    }
+  }
+
+  // Version 1, only a method body changes. The instances keep their size, so no census is taken and the estimate
+  // does not depend on a heap walk of this test.
+  public static class A___1 {
+    public int x = 1;
+
+    public int value() {
+      return x + 1;
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    __toVersion__(0);
+  }
+
+  @Test
+  public void testCancelledRedefinition() {
+
+    assert __version__() == 0;
+
+    A a = new A();
+    // The estimate scales with the used heap. A few large arrays are cheap to allocate, but make the estimated
+    // heap walk take longer than a millisecond.
+    long[][] ballast = new long[8][1 << 20];
+
+    maxPause.set("1");
+    try {
+      __toVersion__(1);
+      fail("Redefinition must be cancelled");
+    } catch (InternalError e) {
+      // JVMTI_ERROR_INTERRUPT has no exception of its own in java.lang.instrument
+    }
+    maxPause.set("0");
+
+    assertEquals(0, __version__());
+    assertEquals(1, a.value());
+    ballast = null;
+
+    // Without a budget the same redefinition succeeds
+    __toVersion__(1);
+    assertEquals(2, a.value());
+
+    __toVersion__(0);
+    assertEquals(1, a.value());
+  }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+package com.github.dcevm.test.body;
+
+import com.github.dcevm.RedefinitionMonitor;
+import com.github.dcevm.RedefinitionMonitorMXBean;
+import com.github.dcevm.test.util.VMOptionRule;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static com.github.dcevm.test.util.HotSwapTestHelper.__toVersion__;
+import static com.github.dcevm.test.util.HotSwapTestHelper.__version__;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests -XX:+HotswapPreserveMethodCounters. A method whose bytecodes did not change keeps the counters of its old
+ * version, the monitor counts the methods whose counters were carried over.
+ */
+public class PreserveMethodCountersTest {
+
+  private static final int N = 1000;
+
+  @Rule
+  public VMOptionRule preserveMethodCounters = new VMOptionRule("HotswapPreserveMethodCounters", "true");
+
+  private RedefinitionMonitorMXBean monitor;
+
+  // Version 0
+  public static class A {
+
+    public int value() {
+      return 1;
+    }
+
+    public int other() {
+      return 1;
+    }
+  }
+
+  // Version 1
+  public static class A___1 {
+
+    public int value() {
+      return 1;
+    }
+
+    public int other() {
+      return 2;
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    __toVersion__(0);
+    monitor = new RedefinitionMonitor();
+  }
+
+  private static int invokeValue(A a) {
+    int sum = 0;
+    for (int i = 0; i < N; i++) {
+      sum += a.value();
+    }
+    return sum;
+  }
+
+  @Test
+  public void testCountersSurviveRedefinition() {
+
+    assert __version__() == 0;
+
+    A a = new A();
+    // The interpreter builds the counters of value()
+    assertEquals(N, invokeValue(a));
+    long preserved = monitor.getPreservedMethodCounterCount();
+
+    __toVersion__(1);
+    assertEquals(1, a.value());
+    assertEquals(2, a.other());
+    assertTrue("Counters of value() were carried over", monitor.getPreservedMethodCounterCount() > preserved);
+    assertEquals(N, invokeValue(a));
+
+    __toVersion__(0);
+    assertEquals(1, a.other());
+  }
+
+  @Test
+  public void testCountersStartColdWithoutFlag() {
+
+    assert __version__() == 0;
+    preserveMethodCounters.set("false");
+
+    A a = new A();
+    assertEquals(N, invokeValue(a));
+    long preserved = monitor.getPreservedMethodCounterCount();
+
+    __toVersion__(1);
+    assertEquals(1, a.value());
+    assertEquals(2, a.other());
+    assertEquals(preserved, monitor.getPreservedMethodCounterCount());
+
+    __toVersion__(0);
+    assertEquals(1, a.other());
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+package com.github.dcevm.test.body;
+
+import com.github.dcevm.RedefinitionMonitor;
+import com.github.dcevm.RedefinitionMonitorMXBean;
+import com.github.dcevm.test.util.VMOptionRule;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static com.github.dcevm.test.util.HotSwapTestHelper.__toVersion__;
+import static com.github.dcevm.test.util.HotSwapTestHelper.__version__;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests -XX:HotswapRecompileHotMethods. The methods whose compiled code is discarded by a redefinition are queued
+ * for compilation again while they are running, the running code must always see the current version.
+ */
+public class RecompileHotMethodsTest {
+
+  public final static int COUNT = 20;
+  public final static int WARMUP = 20000;
+
+  @Rule
+  public VMOptionRule recompileHotMethods = new VMOptionRule("HotswapRecompileHotMethods", "16");
+
+  private RedefinitionMonitorMXBean monitor;
+
+  // Version 0
+  public static class A {
+
+    public static int value() {
+      return 1;
+    }
+
+    public int field() {
+      return 10;
+    }
+  }
+
+  // Version 1
+  public static class A___1 {
+
+    public static int value() {
+      return 2;
+    }
+
+    public int field() {
+      return 20;
+    }
+  }
+
+  public static class Caller {
+
+    public static int sum(int n) {
+      int sum = 0;
+      for (int i = 0; i < n; i++) {
+        sum += A.value();
+      }
+      return sum;
+    }
+
+    public static int sumFields(A a, int n) {
+      int sum = 0;
+      for (int i = 0; i < n; i++) {
+        sum += a.field();
+      }
+      return sum;
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    __toVersion__(0);
+    monitor = new RedefinitionMonitor();
+  }
+
+  private void warmUp(A a, int expectedSum, int expectedFieldSum) {
+    for (int i = 0; i < WARMUP; i++) {
+      assertEquals(expectedSum, Caller.sum(100));
+      assertEquals(expectedFieldSum, Caller.sumFields(a, 100));
+    }
+  }
+
+  @Test
+  public void testRecompiledMethodsSeeNewVersion() {
+
+    assert __version__() == 0;
+
+    A a = new A();
+    warmUp(a, 100, 1000);
+    long recompiled = monitor.getRecompiledMethodCount();
+
+    __toVersion__(1);
+    assertTrue("Discarded methods were queued for compilation", monitor.getRecompiledMethodCount() > recompiled);
+
+    // Runs while the discarded methods are compiled again in the background
+    warmUp(a, 200, 2000);
+
+    __toVersion__(0);
+
+    warmUp(a, 100, 1000);
+  }
+
+  @Test
+  public void testStressSwapWithRecompilation() {
+
+    assert __version__() == 0;
+
+    A a = new A();
+    warmUp(a, 100, 1000);
+
+    for (int i = 0; i < COUNT; i++) {
+
+      __toVersion__(1);
+
+      assertEquals(200, Caller.sum(100));
+      assertEquals(2000, Caller.sumFields(a, 100));
+
+      // The flag is manageable, redefinitions without recompilation are mixed in
+      recompileHotMethods.set(i % 2 == 0 ? "0" : "16");
+
+      __toVersion__(0);
+
+      assertEquals(100, Caller.sum(100));
+      assertEquals(1000, Caller.sumFields(a, 100));
+    }
+  }
+}
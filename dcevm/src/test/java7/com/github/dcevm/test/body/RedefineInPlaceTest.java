@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+package com.github.dcevm.test.body;
+
+import com.github.dcevm.RedefinitionMonitor;
+import com.github.dcevm.RedefinitionMonitorMXBean;
+import com.github.dcevm.test.util.VMOptionRule;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+import static com.github.dcevm.test.util.HotSwapTestHelper.__toVersion__;
+import static com.github.dcevm.test.util.HotSwapTestHelper.__version__;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Test for -XX:+HotswapRedefineInPlace. If only method bodies change, the new methods are installed in the existing
+ * classes and the heap is not walked. Existing instances, class objects, static field values and method handles must
+ * behave as with the full update, also for methods running in OSR compiled code.
+ */
+public class RedefineInPlaceTest {
+
+  @Rule
+  public VMOptionRule redefineInPlace = new VMOptionRule("HotswapRedefineInPlace", "true");
+
+  private RedefinitionMonitorMXBean monitor;
+
+  // Version 0
+  public static class A {
+
+    public static int counter = 5;
+
+    public int value;
+
+    public A(int value) {
+      this.value = value;
+    }
+
+    public int get() {
+      return value;
+    }
+  }
+
+  // Version 1
+  public static class A___1 {
+
+    public static int counter = 5;
+
+    public int value;
+
+    public A___1(int value) {
+      this.value = value;
+    }
+
+    public int get() {
+      return value * 2;
+    }
+  }
+
+  // Version 0
+  public static class B {
+
+    public static volatile boolean stop;
+    public static volatile long iterations;
+
+    public static int loop() {
+      long i = 0;
+      while (!stop) {
+        i++;
+        if ((i & 0xffff) == 0) {
+          iterations = i;
+        }
+      }
+      return 1;
+    }
+  }
+
+  // Version 1
+  public static class B___1 {
+
+    public static volatile boolean stop;
+    public static volatile long iterations;
+
+    public static int loop() {
+      long i = 0;
+      while (!stop) {
+        i++;
+        if ((i & 0xffff) == 0) {
+          iterations = i;
+        }
+      }
+      return 2;
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    __toVersion__(0);
+    monitor = new RedefinitionMonitor();
+  }
+
+  @Test
+  public void testInstancesAndMirror() {
+
+    assert __version__() == 0;
+
+    A a = new A(3);
+    A[] array = new A[] { a };
+    Class<?> clazz = A.class;
+    int hashCode = System.identityHashCode(clazz);
+    A.counter = 7;
+    long referenceUpdates = monitor.getReferenceUpdateCount();
+    long migratedInstances = monitor.getMigratedInstanceCount();
+
+    __toVersion__(1);
+
+    assertEquals(6, a.get());
+    assertEquals(6, array[0].get());
+    assertSame(clazz, A.class);
+    assertSame(A.class, a.getClass());
+    assertSame(A.class, array.getClass().getComponentType());
+    assertEquals(hashCode, System.identityHashCode(A.class));
+    assertEquals(7, A.counter);
+
+    __toVersion__(0);
+
+    assertEquals(3, a.get());
+    assertSame(clazz, A.class);
+    assertEquals(hashCode, System.identityHashCode(A.class));
+    assertEquals(7, A.counter);
+    assertEquals("references were updated", referenceUpdates, monitor.getReferenceUpdateCount());
+    assertEquals("instances were migrated", migratedInstances, monitor.getMigratedInstanceCount());
+  }
+
+  @Test
+  public void testReferencesUpdatedWithoutFlag() {
+
+    assert __version__() == 0;
+
+    redefineInPlace.set("false");
+    A a = new A(3);
+    long referenceUpdates = monitor.getReferenceUpdateCount();
+
+    __toVersion__(1);
+
+    assertEquals(6, a.get());
+    assertEquals(referenceUpdates + 1, monitor.getReferenceUpdateCount());
+  }
+
+  @Test
+  public void testMethodHandle() throws Throwable {
+
+    assert __version__() == 0;
+
+    MethodHandle handle = MethodHandles.lookup().findVirtual(A.class, "get", MethodType.methodType(int.class));
+    A a = new A(4);
+    assertEquals(4, (int) handle.invokeExact(a));
+    long referenceUpdates = monitor.getReferenceUpdateCount();
+
+    __toVersion__(1);
+
+    assertEquals(8, (int) handle.invokeExact(a));
+
+    __toVersion__(0);
+
+    assertEquals(4, (int) handle.invokeExact(a));
+    assertEquals("references were updated", referenceUpdates, monitor.getReferenceUpdateCount());
+  }
+
+  @Test
+  public void testRedefineDuringOsrLoop() throws Exception {
+
+    assert __version__() == 0;
+
+    // The running loops finish in the OSR compiled code of the old method
+    assertEquals(1, loopWhileRedefining(1));
+    assertEquals(2, loopWhileRedefining(0));
+    assertEquals(1, loopWhileRedefining(1));
+
+    __toVersion__(0);
+
+    B.stop = true;
+    assertEquals(1, B.loop());
+  }
+
+  private static int loopWhileRedefining(int version) throws Exception {
+    B.stop = false;
+    B.iterations = 0;
+    final int[] result = new int[1];
+    Thread thread = new Thread() {
+      @Override
+      public void run() {
+        result[0] = B.loop();
+      }
+    };
+    thread.start();
+
+    // Far beyond the back-edge count that triggers the OSR compilation
+    while (B.iterations < 10000000) {
+      Thread.sleep(1);
+    }
+    __toVersion__(version);
+    B.stop = true;
+    thread.join();
+    return result[0];
+  }
+}
@@ -0,0 +1,272 @@
+/*
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+package com.github.dcevm.test.fields;
+
+import com.github.dcevm.RedefinitionMonitor;
+import com.github.dcevm.RedefinitionMonitorMXBean;
+import com.github.dcevm.test.util.VMOptionRule;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+
+import static com.github.dcevm.test.util.HotSwapTestHelper.__toVersion__;
+import static com.github.dcevm.test.util.HotSwapTestHelper.__version__;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests -XX:+HotswapPreserveMirrors. The new class versions take over the java.lang.Class objects of the old
+ * versions, the static fields are migrated in place and the caches of java.lang.Class are cleared.
+ */
+public class PreserveMirrorsTest {
+
+  @Rule
+  public VMOptionRule preserveMirrors = new VMOptionRule("HotswapPreserveMirrors", "true");
+
+  private RedefinitionMonitorMXBean monitor;
+
+  // Version 0
+  public static class A {
+    public static int intField = 1;
+    public static String stringField = "one";
+    public static long removedField = 3;
+  }
+
+  // Version 1, the static fields are reordered
+  public static class A___1 {
+    public static long removedField;
+    public static String stringField;
+    public static int intField;
+  }
+
+  // Version 0
+  public static class C {
+    public static int intField = 1;
+  }
+
+  // Version 2, the added static fields do not fit into the old mirror
+  public static class C___2 {
+    public static int intField;
+    public static long addedField;
+    public static Object addedObjectField;
+  }
+
+  // Version 0
+  public static class D {
+    public static int intField = 1;
+    public static long removedField = 3;
+  }
+
+  // Version 3, a field accessor of the removed static field must be cleared, which needs the reference update
+  public static class D___3 {
+    public static int intField;
+  }
+
+  private static MethodHandle removedFieldGetter;
+
+  // Version 0
+  public static class B {
+    public int value;
+
+    public B() {
+      value = 1;
+    }
+  }
+
+  // Version 1
+  public static class B___1 {
+    public int value;
+
+    public B___1() {
+      value = 2;
+    }
+  }
+
+  // Version 0
+  public static enum E {
+    FIRST,
+    SECOND;
+
+    public int value() {
+      return 1;
+    }
+  }
+
+  // Version 1
+  public static enum E___1 {
+    FIRST,
+    SECOND;
+
+    public int value() {
+      return 2;
+    }
+
+    public int doubled() {
+      return value() * 2;
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    __toVersion__(0);
+    monitor = new RedefinitionMonitor();
+  }
+
+  @Test
+  public void testStaticFields() {
+
+    assert __version__() == 0;
+
+    A.intField = 5;
+    A.stringField = "five";
+    long referenceUpdates = monitor.getReferenceUpdateCount();
+
+    __toVersion__(1);
+
+    assertEquals("Mirrors were adopted", referenceUpdates, monitor.getReferenceUpdateCount());
+    assertEquals(5, A.intField);
+    assertEquals("five", A.stringField);
+
+    A.intField = 6;
+
+    __toVersion__(0);
+
+    assertEquals(6, A.intField);
+    assertEquals("five", A.stringField);
+  }
+
+  @Test
+  public void testAddedStaticFieldFallsBack() {
+
+    assert __version__() == 0;
+
+    C.intField = 5;
+    Class<?> mirror = C.class;
+    long referenceUpdates = monitor.getReferenceUpdateCount();
+
+    __toVersion__(2);
+
+    // The references to the old mirror were updated instead
+    assertEquals(referenceUpdates + 1, monitor.getReferenceUpdateCount());
+    assertSame(mirror, C.class);
+    assertEquals(5, C.intField);
+
+    __toVersion__(0);
+
+    assertEquals(5, C.intField);
+  }
+
+  @Test
+  public void testRemovedStaticFieldFallsBack() throws Throwable {
+
+    assert __version__() == 0;
+
+    D.intField = 5;
+    removedFieldGetter = MethodHandles.publicLookup().findStaticGetter(D.class, "removedField", long.class);
+    assertEquals(3L, (long) removedFieldGetter.invoke());
+    long referenceUpdates = monitor.getReferenceUpdateCount();
+
+    __toVersion__(3);
+
+    // The references to the handle were cleared by the reference update
+    assertEquals(referenceUpdates + 1, monitor.getReferenceUpdateCount());
+    assertNull(removedFieldGetter);
+    assertEquals(5, D.intField);
+
+    __toVersion__(0);
+
+    assertEquals(5, D.intField);
+  }
+
+  @Test
+  public void testClassIdentity() throws Exception {
+
+    assert __version__() == 0;
+
+    Class<?> mirror = A.class;
+    int hashCode = System.identityHashCode(mirror);
+    Object lock = A.class;
+
+    __toVersion__(1);
+
+    assertSame(mirror, A.class);
+    assertSame(mirror, Class.forName(A.class.getName()));
+    assertEquals(hashCode, System.identityHashCode(A.class));
+    synchronized (lock) {
+      assertSame(lock, A.class);
+    }
+
+    __toVersion__(0);
+
+    assertSame(mirror, A.class);
+  }
+
+  @Test
+  public void testCachedConstructor() throws Exception {
+
+    assert __version__() == 0;
+
+    // Class.newInstance() caches the constructor of the version it was called for
+    assertEquals(1, B.class.newInstance().value);
+
+    __toVersion__(1);
+
+    assertEquals(2, B.class.newInstance().value);
+    assertEquals(2, new B().value);
+
+    __toVersion__(0);
+
+    assertEquals(1, B.class.newInstance().value);
+  }
+
+  @Test
+  public void testEnumCaches() {
+
+    assert __version__() == 0;
+
+    Class<E> mirror = E.class;
+    // Fill enumConstants and enumConstantDirectory of the mirror
+    assertArrayEquals(new E[]{E.FIRST, E.SECOND}, mirror.getEnumConstants());
+    assertSame(E.SECOND, Enum.valueOf(mirror, "SECOND"));
+    assertEquals(1, E.FIRST.value());
+
+    __toVersion__(1);
+
+    assertSame(mirror, E.class);
+    assertArrayEquals(E.values(), E.class.getEnumConstants());
+    assertSame(E.values()[1], Enum.valueOf(E.class, "SECOND"));
+    assertEquals(2, E.FIRST.value());
+    assertEquals(2, E.values().length);
+
+    __toVersion__(0);
+
+    assertArrayEquals(E.values(), E.class.getEnumConstants());
+    assertEquals(1, E.SECOND.value());
+  }
+}
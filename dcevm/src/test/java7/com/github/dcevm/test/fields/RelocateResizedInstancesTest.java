@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+package com.github.dcevm.test.fields;
+
+import com.github.dcevm.test.util.VMOptionRule;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+import static com.github.dcevm.test.util.HotSwapTestHelper.__toVersion__;
+import static com.github.dcevm.test.util.HotSwapTestHelper.__version__;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Tests -XX:+HotswapRelocateResizedInstances. With the serial collector, instances that grow are copied to the old
+ * generation and the references are forwarded to the copies, the redefinition does not run a full GC. The flag only
+ * applies to the serial collector, with the others the test is skipped: the parallel collector always relocates and
+ * the remaining ones resize with a full GC, so the test could not tell whether the flag took effect.
+ */
+public class RelocateResizedInstancesTest {
+
+  @Rule
+  public VMOptionRule relocateResizedInstances = new VMOptionRule("HotswapRelocateResizedInstances", "true");
+
+  // Version 0
+  public static class A {
+    public int x;
+    public A next;
+
+    public int value() {
+      return x;
+    }
+  }
+
+  // Version 1, instances grow
+  public static class A___1 {
+    public int x;
+    public A next;
+    public long y;
+    public long z;
+
+    public int value() {
+      return x + (int) y + (int) z;
+    }
+  }
+
+  // Not redefined
+  public static class Holder {
+    public A a;
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    assumeTrue("HotswapRelocateResizedInstances only applies to the serial collector", isSerialCollector());
+    __toVersion__(0);
+  }
+
+  @Test
+  public void testRelocatedInstances() {
+
+    assert __version__() == 0;
+
+    A[] instances = new A[1000];
+    for (int i = 0; i < instances.length; i++) {
+      instances[i] = new A();
+      instances[i].x = i;
+    }
+    // References between relocated instances and from an instance that is not relocated
+    for (int i = 0; i < instances.length - 1; i++) {
+      instances[i].next = instances[i + 1];
+    }
+    Holder holder = new Holder();
+    holder.a = instances[42];
+    int hashCode = instances[7].hashCode();
+
+    long fullCollections = fullCollectionCount();
+    __toVersion__(1);
+    assertEquals("redefinition must not run a full GC", fullCollections, fullCollectionCount());
+
+    for (int i = 0; i < instances.length; i++) {
+      assertEquals(i, instances[i].value());
+    }
+    for (int i = 0; i < instances.length - 1; i++) {
+      assertSame(instances[i + 1], instances[i].next);
+    }
+    assertSame(instances[42], holder.a);
+    assertEquals(hashCode, instances[7].hashCode());
+
+    // The old locations are filler objects now, a regular collection must be able to walk them
+    System.gc();
+    assertEquals(999, instances[999].value());
+
+    __toVersion__(0);
+    assertEquals(999, instances[999].value());
+    assertSame(instances[43], holder.a.next);
+  }
+
+  // The young collector of -XX:+UseSerialGC, the old one (MarkSweepCompact) also runs with ParNew
+  private static boolean isSerialCollector() {
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      if ("Copy".equals(collector.getName())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  // Collections of the old generation of the serial collector
+  private static long fullCollectionCount() {
+    long count = 0;
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      if ("MarkSweepCompact".equals(collector.getName())) {
+        count += collector.getCollectionCount();
+      }
+    }
+    return count;
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+package com.github.dcevm.test.management;
+
+import com.github.dcevm.RedefinitionMonitor;
+import com.github.dcevm.RedefinitionMonitorMXBean;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.JMX;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static com.github.dcevm.test.util.HotSwapTestHelper.__toVersion__;
+import static com.github.dcevm.test.util.HotSwapTestHelper.__version__;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the redefinition statistics published by {@link RedefinitionMonitor}.
+ */
+public class RedefinitionMonitorTest {
+
+  private RedefinitionMonitorMXBean monitor;
+
+  // Version 0
+  public static class A {
+    public int x = 1;
+  }
+
+  // Version 1
+  public static class A___1 {
+    public int x;
+    public int y;
+  }
+
+  // Version 0
+  public interface I {
+    int value();
+  }
+
+  // Version 2, an interface is redefined
+  public interface I___2 {
+    int value();
+
+    int otherValue();
+  }
+
+  // Version 0
+  public static class B implements I {
+    public int value() {
+      return 1;
+    }
+  }
+
+  // Version 2
+  public static class B___2 implements I {
+    public int value() {
+      return 2;
+    }
+
+    public int otherValue() {
+      return 3;
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    __toVersion__(0);
+    ObjectName name = RedefinitionMonitor.register();
+    monitor = JMX.newMXBeanProxy(ManagementFactory.getPlatformMBeanServer(), name, RedefinitionMonitorMXBean.class);
+  }
+
+  @Test
+  public void testCounters() {
+
+    assert __version__() == 0;
+
+    A a = new A();
+    long redefinitions = monitor.getRedefinitionCount();
+    long affectedClasses = monitor.getAffectedClassCount();
+    long migratedInstances = monitor.getMigratedInstanceCount();
+
+    __toVersion__(1);
+
+    assertEquals(redefinitions + 1, monitor.getRedefinitionCount());
+    assertTrue(monitor.getAffectedClassCount() > affectedClasses);
+    assertTrue(monitor.getMigratedInstanceCount() > migratedInstances);
+    assertTrue(monitor.getLastPauseMillis() <= monitor.getMaxPauseMillis());
+
+    long pauses = 0;
+    for (long count : monitor.getPauseHistogram().values()) {
+      pauses += count;
+    }
+    assertEquals(monitor.getRedefinitionCount(), pauses);
+
+    __toVersion__(0);
+
+    assertEquals(1, a.x);
+    assertEquals(redefinitions + 2, monitor.getRedefinitionCount());
+  }
+
+  @Test
+  public void testVisitedImplementors() {
+
+    assert __version__() == 0;
+
+    I i = new B();
+
+    // The implementors of I are visited without checking all loaded classes
+    long visitedClasses = monitor.getVisitedClassCount();
+    __toVersion__(2);
+    long visited = monitor.getVisitedClassCount() - visitedClasses;
+    assertTrue(visited > 0);
+    assertTrue(visited < ManagementFactory.getClassLoadingMXBean().getLoadedClassCount());
+    assertEquals(2, i.value());
+
+    __toVersion__(0);
+    assertEquals(1, i.value());
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.github.dcevm.test.methods;
+
+import com.github.dcevm.test.category.Full;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static com.github.dcevm.test.util.HotSwapTestHelper.__toVersion__;
+import static com.github.dcevm.test.util.HotSwapTestHelper.__version__;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test case that calls virtual methods from old code after the class was redefined more than a hundred
+ * times, so that the receiver class has a long chain of old versions.
+ */
+@Category(Full.class)
+public class OldCodeManyRevisionsTest {
+
+  // Odd, so that the class ends up in version 1
+  private static final int REVISIONS = 101;
+
+  private static final int N = 100000;
+
+  @Before
+  public void setUp() throws Exception {
+    __toVersion__(0);
+  }
+
+  // Version 0
+  public static class A {
+
+    public int value() {
+      return 1;
+    }
+
+    public int oldMethod() {
+      for (int i = 0; i < REVISIONS; i++) {
+        __toVersion__(i % 2 == 0 ? 1 : 0);
+      }
+      int sum = 0;
+      for (int i = 0; i < N; i++) {
+        sum += value();
+      }
+      return sum;
+    }
+  }
+
+  // Version 1
+  public static class A___1 {
+
+    public int value() {
+      return 2;
+    }
+
+    public int oldMethod() {
+      return 0;
+    }
+  }
+
+  @Test
+  public void testOldCodeAfterManyRevisions() {
+
+    assert __version__() == 0;
+    A a = new A();
+
+    assertEquals(N, a.oldMethod());
+    assert __version__() == 1;
+    assertEquals(2, a.value());
+    assertEquals(0, a.oldMethod());
+
+    __toVersion__(0);
+    assertEquals(1, a.value());
+  }
+}
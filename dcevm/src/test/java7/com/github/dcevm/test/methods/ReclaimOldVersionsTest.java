@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+package com.github.dcevm.test.methods;
+
+import com.github.dcevm.RedefinitionMonitor;
+import com.github.dcevm.RedefinitionMonitorMXBean;
+import com.github.dcevm.test.util.VMOptionRule;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static com.github.dcevm.test.util.HotSwapTestHelper.__toVersion__;
+import static com.github.dcevm.test.util.HotSwapTestHelper.__version__;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests -XX:+HotswapReclaimOldVersions. The class hierarchy is redefined many times, the current versions of the
+ * class and its subclasses must keep working once the old versions are freed. Old versions of a superclass must be
+ * kept while old code of a subclass is running.
+ */
+public class ReclaimOldVersionsTest {
+
+  // Odd, so that the classes end up in version 1
+  private static final int REVISIONS = 21;
+
+  private static final int N = 1000;
+
+  @Rule
+  public VMOptionRule reclaimOldVersions = new VMOptionRule("HotswapReclaimOldVersions", "true");
+
+  private RedefinitionMonitorMXBean monitor;
+
+  public static interface I {
+    int id();
+  }
+
+  // Version 0
+  public static class A implements I {
+
+    public int value() {
+      return 1;
+    }
+
+    public int id() {
+      return value();
+    }
+  }
+
+  // Version 1
+  public static class A___1 implements I {
+
+    public int value() {
+      return 2;
+    }
+
+    public int id() {
+      return value();
+    }
+  }
+
+  // Version 0
+  public static class B extends A {
+
+    @Override
+    public int value() {
+      return super.value() + 10;
+    }
+
+    public int oldMethod() {
+      for (int i = 0; i < REVISIONS; i++) {
+        __toVersion__(i % 2 == 0 ? 1 : 0);
+      }
+      int sum = 0;
+      for (int i = 0; i < N; i++) {
+        sum += value();
+      }
+      return sum;
+    }
+  }
+
+  // Version 1
+  public static class B___1 extends A {
+
+    @Override
+    public int value() {
+      return super.value() + 20;
+    }
+
+    public int oldMethod() {
+      return 0;
+    }
+  }
+
+  // Version 0, an interface without methods
+  public static interface M {
+  }
+
+  // Version 1
+  public static interface M___1 {
+    int X = 1;
+  }
+
+  public static class D implements M {
+  }
+
+  public static class C extends B {
+
+    public int twice() {
+      return 2 * value();
+    }
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    __toVersion__(0);
+    monitor = new RedefinitionMonitor();
+  }
+
+  private void assertHierarchy(int version) {
+    int a = version == 0 ? 1 : 2;
+    int b = a + (version == 0 ? 10 : 20);
+    A[] instances = {new A(), new B(), new C()};
+    int[] expected = {a, b, b};
+    for (int i = 0; i < instances.length; i++) {
+      assertEquals(expected[i], instances[i].value());
+      assertEquals(expected[i], ((I) instances[i]).id());
+    }
+    assertEquals(2 * b, new C().twice());
+  }
+
+  @Test
+  public void testRedefineManyTimes() {
+
+    assert __version__() == 0;
+
+    A a = new A();
+    C c = new C();
+    long reclaimed = monitor.getReclaimedVersionCount();
+
+    for (int i = 0; i < REVISIONS; i++) {
+      int version = i % 2 == 0 ? 1 : 0;
+      __toVersion__(version);
+      assertHierarchy(version);
+      assertEquals(version == 0 ? 11 : 22, c.value());
+
+      // Class unloading cleans the links to the released versions, the next redefinition frees them
+      System.gc();
+      assertHierarchy(version);
+      assertEquals(version == 0 ? 1 : 2, a.id());
+    }
+
+    assertTrue("Old versions were reclaimed", monitor.getReclaimedVersionCount() > reclaimed);
+    assertTrue(monitor.getReclaimedBytes() > 0);
+
+    __toVersion__(0);
+    assertHierarchy(0);
+  }
+
+  @Test
+  public void testOldSubclassCodeKeepsSuperclassVersions() {
+
+    assert __version__() == 0;
+
+    // Old code of B calls the old version of A through super.value()
+    assertEquals(11 * N, new B().oldMethod());
+    assert __version__() == 1;
+    System.gc();
+    assertHierarchy(1);
+
+    __toVersion__(0);
+    assertHierarchy(0);
+  }
+
+  @Test
+  public void testRedefineEmptyInterface() {
+
+    assert __version__() == 0;
+
+    D d = new D();
+    long reclaimed = monitor.getReclaimedVersionCount();
+
+    for (int i = 0; i < REVISIONS; i++) {
+      __toVersion__(i % 2 == 0 ? 1 : 0);
+      System.gc();
+      assertTrue(d instanceof M);
+      assertTrue(new D() instanceof M);
+    }
+
+    // All but the versions released by the last two redefinitions are freed
+    assertTrue("Old interface versions were freed", monitor.getReclaimedVersionCount() - reclaimed >= REVISIONS - 2);
+
+    __toVersion__(0);
+    assertTrue(new D() instanceof M);
+  }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.github.dcevm.test.structural;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+
+import java.lang.reflect.Method;
+
+import static com.github.dcevm.test.util.HotSwapTestHelper.__toVersion__;
+import static com.github.dcevm.test.util.HotSwapTestHelper.__version__;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Redefines a base class with many loaded subclasses. All of them are affected by the redefinition and have to be
+ * sorted and reloaded.
+ */
+public class ManySubclassesTest {
+
+  public final static int SUBCLASS_COUNT = 1000;
+
+  // Version 0
+  public static class A {
+
+    public int value() {
+      return 1;
+    }
+  }
+
+  // Version 1
+  public static class A___1 {
+
+    public int value() {
+      return 2;
+    }
+
+    public int newMethod() {
+      return 3;
+    }
+  }
+
+  private static class GeneratingLoader extends ClassLoader {
+
+    GeneratingLoader(ClassLoader parent) {
+      super(parent);
+    }
+
+    Class<?> define(String name, byte[] bytes) {
+      return defineClass(name, bytes, 0, bytes.length);
+    }
+  }
+
+  private static A[] instances;
+
+  @Before
+  public void setUp() throws Exception {
+    __toVersion__(0);
+    if (instances == null) {
+      instances = createSubclassInstances(SUBCLASS_COUNT);
+    }
+  }
+
+  private static A[] createSubclassInstances(int count) throws Exception {
+    GeneratingLoader loader = new GeneratingLoader(A.class.getClassLoader());
+    String superName = Type.getInternalName(A.class);
+    A[] result = new A[count];
+    for (int i = 0; i < count; i++) {
+      String name = "com/github/dcevm/test/structural/GeneratedSubclass" + i;
+      ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+      writer.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, name, null, superName, null);
+      MethodVisitor init = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+      init.visitCode();
+      init.visitVarInsn(Opcodes.ALOAD, 0);
+      init.visitMethodInsn(Opcodes.INVOKESPECIAL, superName, "<init>", "()V", false);
+      init.visitInsn(Opcodes.RETURN);
+      init.visitMaxs(0, 0);
+      init.visitEnd();
+      writer.visitEnd();
+      result[i] = (A) loader.define(name.replace('/', '.'), writer.toByteArray()).newInstance();
+    }
+    return result;
+  }
+
+  @Test
+  public void testRedefineBaseClass() {
+
+    assert __version__() == 0;
+
+    assertValues(1);
+    assertNewMethod(false);
+
+    __toVersion__(1);
+
+    assertValues(2);
+    assertNewMethod(true);
+
+    __toVersion__(0);
+
+    assertValues(1);
+    assertNewMethod(false);
+  }
+
+  private static void assertValues(int expected) {
+    for (A a : instances) {
+      assertEquals(expected, a.value());
+    }
+  }
+
+  // The method added to A is inherited by every subclass
+  private static void assertNewMethod(boolean present) {
+    for (A a : instances) {
+      try {
+        Method m = a.getClass().getMethod("newMethod");
+        assertTrue(present);
+        assertEquals(3, m.invoke(a));
+      } catch (NoSuchMethodException e) {
+        assertFalse(present);
+      } catch (ReflectiveOperationException e) {
+        throw new AssertionError(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+
+package com.github.dcevm.test.structural;
+
+import com.github.dcevm.test.TestUtil;
+import com.github.dcevm.test.util.VMOptionRule;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static com.github.dcevm.test.util.HotSwapTestHelper.__toVersion__;
+import static com.github.dcevm.test.util.HotSwapTestHelper.__version__;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for -XX:+HotswapRelinkUnchangedClasses. The subclasses of the redefined class keep their shape, so they
+ * are relinked instead of reloaded. A is found through the primary supers display of its subclasses, M is deeper
+ * than the display and is found through the secondary supers of N. Q is not relinked, because its subclass R is
+ * redefined together with P and its new version copies the supertypes and the vtable of Q.
+ */
+public class RelinkUnchangedClassesTest {
+
+  @Rule
+  public VMOptionRule relinkUnchangedClasses = new VMOptionRule("HotswapRelinkUnchangedClasses", "true");
+
+  @Before
+  public void setUp() throws Exception {
+    __toVersion__(0);
+  }
+
+  public interface I {
+
+    int twice();
+  }
+
+  // Version 0
+  public static class A {
+
+    public int value() {
+      return 1;
+    }
+  }
+
+  // Version 1
+  public static class A___1 {
+
+    public int value() {
+      return 2;
+    }
+  }
+
+  public static class B extends A implements I {
+
+    @Override
+    public int twice() {
+      return value() * 2;
+    }
+  }
+
+  public static class C extends B {
+
+    @Override
+    public int value() {
+      return super.value() + 10;
+    }
+  }
+
+  public static class D extends C {
+  }
+
+  public static class E extends D {
+  }
+
+  public static class F extends E {
+  }
+
+  public static class G extends F {
+  }
+
+  public static class H extends G {
+  }
+
+  public static class J extends H {
+  }
+
+  public static class K extends J {
+
+    @Override
+    public int value() {
+      return super.value() + 100;
+    }
+  }
+
+  public static class L1 {
+  }
+
+  public static class L2 extends L1 {
+  }
+
+  public static class L3 extends L2 {
+  }
+
+  public static class L4 extends L3 {
+  }
+
+  public static class L5 extends L4 {
+  }
+
+  public static class L6 extends L5 {
+  }
+
+  public static class L7 extends L6 {
+  }
+
+  // Version 0
+  public static class M extends L7 {
+
+    public int value() {
+      return 1;
+    }
+  }
+
+  // Version 1
+  public static class M___1 extends L7 {
+
+    public int value() {
+      return 2;
+    }
+  }
+
+  public static class N extends M {
+
+    @Override
+    public int value() {
+      return super.value() + 10;
+    }
+  }
+
+  // Version 0
+  public static class P {
+
+    public int value() {
+      return 1;
+    }
+  }
+
+  // Version 1
+  public static class P___1 {
+
+    public int value() {
+      return 2;
+    }
+  }
+
+  public static class Q extends P {
+  }
+
+  // Version 0
+  public static class R extends Q {
+
+    public int triple() {
+      return value() * 3;
+    }
+  }
+
+  // Version 1
+  public static class R___1 extends Q {
+
+    public int triple() {
+      return value() * 30;
+    }
+  }
+
+  @Test
+  public void testRelinkSubclasses() {
+
+    assert __version__() == 0;
+
+    B b = new B();
+    C c = new C();
+    K k = new K();
+    Object o = k;
+
+    assertEquals(2, b.twice());
+    assertEquals(11, c.value());
+    assertEquals(111, k.value());
+    int bCount = TestUtil.getClassRedefinedCount(B.class);
+    int kCount = TestUtil.getClassRedefinedCount(K.class);
+
+    __toVersion__(1);
+
+    assertEquals(4, b.twice());
+    assertEquals(12, c.value());
+    assertEquals(112, k.value());
+    assertEquals(224, ((I) o).twice());
+    assertTrue(o instanceof A);
+    assertTrue(o instanceof B);
+    assertTrue(o instanceof H);
+    assertTrue(A.class.isAssignableFrom(K.class));
+    assertEquals(A.class, K.class.getSuperclass().getSuperclass().getSuperclass().getSuperclass()
+            .getSuperclass().getSuperclass().getSuperclass().getSuperclass().getSuperclass());
+    assertEquals(bCount + 1, TestUtil.getClassRedefinedCount(B.class));
+    assertEquals(kCount + 1, TestUtil.getClassRedefinedCount(K.class));
+
+    __toVersion__(0);
+
+    assertEquals(2, b.twice());
+    assertEquals(111, k.value());
+    assertTrue(o instanceof A);
+  }
+
+  @Test
+  public void testRelinkThroughSecondarySupers() {
+
+    assert __version__() == 0;
+
+    N n = new N();
+    Object o = n;
+
+    assertEquals(11, n.value());
+    int nCount = TestUtil.getClassRedefinedCount(N.class);
+
+    __toVersion__(1);
+
+    assertEquals(12, n.value());
+    assertTrue(o instanceof M);
+    assertTrue(o instanceof L7);
+    assertTrue(M.class.isAssignableFrom(N.class));
+    assertEquals(M.class, N.class.getSuperclass());
+    assertEquals(nCount + 1, TestUtil.getClassRedefinedCount(N.class));
+
+    __toVersion__(0);
+
+    assertEquals(11, n.value());
+    assertTrue(o instanceof M);
+  }
+
+  @Test
+  public void testReloadSuperclassOfRedefinedClass() {
+
+    assert __version__() == 0;
+
+    R r = new R();
+    Object o = r;
+
+    assertEquals(3, r.triple());
+
+    __toVersion__(1);
+
+    assertEquals(60, r.triple());
+    assertEquals(2, r.value());
+    assertTrue(o instanceof P);
+    assertTrue(o instanceof Q);
+    assertTrue(P.class.isAssignableFrom(R.class));
+    assertEquals(P.class, R.class.getSuperclass().getSuperclass());
+
+    __toVersion__(0);
+
+    assertEquals(3, r.triple());
+    assertTrue(o instanceof P);
+  }
+}
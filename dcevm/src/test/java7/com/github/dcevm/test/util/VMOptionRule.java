@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2010, Oracle and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 only, as
+ * published by the Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ *
+ * Please contact Oracle, 500 Oracle Parkway, Redwood Shores, CA 94065 USA
+ * or visit www.oracle.com if you need additional information or have any
+ * questions.
+ *
+ */
+package com.github.dcevm.test.util;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import org.junit.rules.ExternalResource;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Sets a manageable VM option for the duration of a test and restores the previous value afterwards. Skips the
+ * test if the VM does not have the option (a build of another DCEVM version), tests for a DCEVM flag must not
+ * silently run in the default mode.
+ */
+public class VMOptionRule extends ExternalResource {
+
+  private final String name;
+  private final String value;
+
+  private HotSpotDiagnosticMXBean diagnostic;
+  private String oldValue;
+
+  public VMOptionRule(String name, String value) {
+    this.name = name;
+    this.value = value;
+  }
+
+  @Override
+  protected void before() throws Throwable {
+    diagnostic = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+    try {
+      oldValue = diagnostic.getVMOption(name).getValue();
+    } catch (IllegalArgumentException e) {
+      oldValue = null;
+    }
+    assumeTrue("VM option " + name + " is not available in this VM", oldValue != null);
+    set(value);
+  }
+
+  @Override
+  protected void after() {
+    if (oldValue != null) {
+      set(oldValue);
+    }
+  }
+
+  /**
+   * Changes the option within the test, the value before the test is still restored afterwards.
+   */
+  public void set(String newValue) {
+    diagnostic.setVMOption(name, newValue);
+  }
+}